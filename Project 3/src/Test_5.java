@@ -0,0 +1,25 @@
+public class Test_5 {
+	int f;
+
+	public static int g(int x) {
+		return x;
+	}
+
+	public static void m5(int a) {
+		Robot r = new Robot(0, 7);
+		int b = a / 2;
+		r.weldAt(100);
+	}
+
+	public void n5(int a) {
+		Robot r = new Robot(0, 7);
+		f = 5;
+		r.weldBetween(50, 60);
+	}
+
+	public static void o5(int a) {
+		Robot r = new Robot(0, 7);
+		int b = g(a);
+		r.weldAt(b);
+	}
+}
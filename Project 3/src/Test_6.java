@@ -0,0 +1,391 @@
+public class Test_6 {
+	public static void m6(int a) {
+		Robot r = new Robot(0, 100);
+		switch (a) {
+		case 0:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 0);
+			}
+			for (int j = 50; j > 0; j--) {
+				r.weldBetween(0, j);
+			}
+			break;
+		case 1:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 1);
+			}
+			for (int j = 50; j > 1; j--) {
+				r.weldBetween(1, j);
+			}
+			break;
+		case 2:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 2);
+			}
+			for (int j = 50; j > 2; j--) {
+				r.weldBetween(2, j);
+			}
+			break;
+		case 3:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 3);
+			}
+			for (int j = 50; j > 3; j--) {
+				r.weldBetween(3, j);
+			}
+			break;
+		case 4:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 4);
+			}
+			for (int j = 50; j > 4; j--) {
+				r.weldBetween(4, j);
+			}
+			break;
+		case 5:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 5);
+			}
+			for (int j = 50; j > 5; j--) {
+				r.weldBetween(5, j);
+			}
+			break;
+		case 6:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 6);
+			}
+			for (int j = 50; j > 6; j--) {
+				r.weldBetween(6, j);
+			}
+			break;
+		case 7:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 7);
+			}
+			for (int j = 50; j > 7; j--) {
+				r.weldBetween(7, j);
+			}
+			break;
+		case 8:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 8);
+			}
+			for (int j = 50; j > 8; j--) {
+				r.weldBetween(8, j);
+			}
+			break;
+		case 9:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 9);
+			}
+			for (int j = 50; j > 9; j--) {
+				r.weldBetween(9, j);
+			}
+			break;
+		case 10:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 10);
+			}
+			for (int j = 50; j > 10; j--) {
+				r.weldBetween(10, j);
+			}
+			break;
+		case 11:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 11);
+			}
+			for (int j = 50; j > 11; j--) {
+				r.weldBetween(11, j);
+			}
+			break;
+		case 12:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 12);
+			}
+			for (int j = 50; j > 12; j--) {
+				r.weldBetween(12, j);
+			}
+			break;
+		case 13:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 13);
+			}
+			for (int j = 50; j > 13; j--) {
+				r.weldBetween(13, j);
+			}
+			break;
+		case 14:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 14);
+			}
+			for (int j = 50; j > 14; j--) {
+				r.weldBetween(14, j);
+			}
+			break;
+		case 15:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 15);
+			}
+			for (int j = 50; j > 15; j--) {
+				r.weldBetween(15, j);
+			}
+			break;
+		case 16:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 16);
+			}
+			for (int j = 50; j > 16; j--) {
+				r.weldBetween(16, j);
+			}
+			break;
+		case 17:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 17);
+			}
+			for (int j = 50; j > 17; j--) {
+				r.weldBetween(17, j);
+			}
+			break;
+		case 18:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 18);
+			}
+			for (int j = 50; j > 18; j--) {
+				r.weldBetween(18, j);
+			}
+			break;
+		case 19:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 19);
+			}
+			for (int j = 50; j > 19; j--) {
+				r.weldBetween(19, j);
+			}
+			break;
+		case 20:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 20);
+			}
+			for (int j = 50; j > 20; j--) {
+				r.weldBetween(20, j);
+			}
+			break;
+		case 21:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 21);
+			}
+			for (int j = 50; j > 21; j--) {
+				r.weldBetween(21, j);
+			}
+			break;
+		case 22:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 22);
+			}
+			for (int j = 50; j > 22; j--) {
+				r.weldBetween(22, j);
+			}
+			break;
+		case 23:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 23);
+			}
+			for (int j = 50; j > 23; j--) {
+				r.weldBetween(23, j);
+			}
+			break;
+		case 24:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 24);
+			}
+			for (int j = 50; j > 24; j--) {
+				r.weldBetween(24, j);
+			}
+			break;
+		case 25:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 25);
+			}
+			for (int j = 50; j > 25; j--) {
+				r.weldBetween(25, j);
+			}
+			break;
+		case 26:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 26);
+			}
+			for (int j = 50; j > 26; j--) {
+				r.weldBetween(26, j);
+			}
+			break;
+		case 27:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 27);
+			}
+			for (int j = 50; j > 27; j--) {
+				r.weldBetween(27, j);
+			}
+			break;
+		case 28:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 28);
+			}
+			for (int j = 50; j > 28; j--) {
+				r.weldBetween(28, j);
+			}
+			break;
+		case 29:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 29);
+			}
+			for (int j = 50; j > 29; j--) {
+				r.weldBetween(29, j);
+			}
+			break;
+		case 30:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 30);
+			}
+			for (int j = 50; j > 30; j--) {
+				r.weldBetween(30, j);
+			}
+			break;
+		case 31:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 31);
+			}
+			for (int j = 50; j > 31; j--) {
+				r.weldBetween(31, j);
+			}
+			break;
+		case 32:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 32);
+			}
+			for (int j = 50; j > 32; j--) {
+				r.weldBetween(32, j);
+			}
+			break;
+		case 33:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 33);
+			}
+			for (int j = 50; j > 33; j--) {
+				r.weldBetween(33, j);
+			}
+			break;
+		case 34:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 34);
+			}
+			for (int j = 50; j > 34; j--) {
+				r.weldBetween(34, j);
+			}
+			break;
+		case 35:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 35);
+			}
+			for (int j = 50; j > 35; j--) {
+				r.weldBetween(35, j);
+			}
+			break;
+		case 36:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 36);
+			}
+			for (int j = 50; j > 36; j--) {
+				r.weldBetween(36, j);
+			}
+			break;
+		case 37:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 37);
+			}
+			for (int j = 50; j > 37; j--) {
+				r.weldBetween(37, j);
+			}
+			break;
+		case 38:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 38);
+			}
+			for (int j = 50; j > 38; j--) {
+				r.weldBetween(38, j);
+			}
+			break;
+		case 39:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 39);
+			}
+			for (int j = 50; j > 39; j--) {
+				r.weldBetween(39, j);
+			}
+			break;
+		case 40:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 40);
+			}
+			for (int j = 50; j > 40; j--) {
+				r.weldBetween(40, j);
+			}
+			break;
+		case 41:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 41);
+			}
+			for (int j = 50; j > 41; j--) {
+				r.weldBetween(41, j);
+			}
+			break;
+		case 42:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 42);
+			}
+			for (int j = 50; j > 42; j--) {
+				r.weldBetween(42, j);
+			}
+			break;
+		case 43:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 43);
+			}
+			for (int j = 50; j > 43; j--) {
+				r.weldBetween(43, j);
+			}
+			break;
+		case 44:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 44);
+			}
+			for (int j = 50; j > 44; j--) {
+				r.weldBetween(44, j);
+			}
+			break;
+		case 45:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 45);
+			}
+			for (int j = 50; j > 45; j--) {
+				r.weldBetween(45, j);
+			}
+			break;
+		case 46:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 46);
+			}
+			for (int j = 50; j > 46; j--) {
+				r.weldBetween(46, j);
+			}
+			break;
+		case 47:
+			for (int i = 0; i < 50; i++) {
+				r.weldAt(i + 47);
+			}
+			for (int j = 50; j > 47; j--) {
+				r.weldBetween(47, j);
+			}
+			break;
+		}
+	}
+}
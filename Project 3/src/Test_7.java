@@ -0,0 +1,10 @@
+public class Test_7 {
+	public static void m7(int n) {
+		Robot r = new Robot(0, 7);
+		int i = 0;
+		while (i < --n) {
+			r.weldAt(i);
+			i++;
+		}
+	}
+}
@@ -0,0 +1,8 @@
+public class Test_8 {
+	public static void m8() {
+		Robot r = new Robot(0, 7);
+		for (int i = 0; i < 10; i++) {
+			r.weldAt(100);
+		}
+	}
+}
@@ -26,6 +26,8 @@ public class AWrapper {
 
     public boolean equals(Object o) {
         Abstract1 t = ((AWrapper) o).get();
+        if (elem == t)
+            return true;
         try {
             if (elem.isEqual(man, t) != elem.isIncluded(man, t))
                 System.out.println("VIOLA");
@@ -1,13 +1,17 @@
 package ch.ethz.sae;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import apron.Abstract1;
 import apron.ApronException;
 import apron.Environment;
 import apron.Interval;
+import apron.Lincons0;
+import apron.Lincons1;
 import apron.Linexpr1;
 import apron.Manager;
 import apron.Polka;
@@ -20,6 +24,7 @@ import soot.Unit;
 import soot.Value;
 import soot.jimple.BinopExpr;
 import soot.jimple.DefinitionStmt;
+import soot.jimple.FieldRef;
 import soot.jimple.IfStmt;
 import soot.jimple.IntConstant;
 import soot.jimple.ParameterRef;
@@ -48,8 +53,24 @@ import soot.util.Chain;
 public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
 
     private static final int WIDENING_THRESHOLD = 6;
+    // Methods with at least this many units are solved by the ParallelSolver,
+    // if it is enabled with -Dsae.parallel=true.
+    private static final int PARALLEL_THRESHOLD = 500;
 
     private HashMap<Unit, Counter> loopHeads, backJumps;
+    private HashMap<Unit, LoopAccelerator.Induction> inductions;
+    private StateTable states;
+    // Each unit's memo is only used by the thread solving its component, but
+    // the map itself is shared when solving in parallel.
+    private ConcurrentHashMap<Unit, IdentityHashMap<Abstract1, Transfer>> memo = new ConcurrentHashMap<Unit, IdentityHashMap<Abstract1, Transfer>>();
+    // Apron managers are not thread-safe, and neither is the reference count
+    // of a native environment, so the parallel solver's threads each have
+    // their own manager, environment, bottom and state table. The pool's
+    // threads outlive the analysis, so only the manager is kept after a solve.
+    private static ThreadLocal<Manager> threadManager = new ThreadLocal<Manager>();
+    private ThreadLocal<Environment> threadEnv = new ThreadLocal<Environment>();
+    private ThreadLocal<Abstract1> threadBottom = new ThreadLocal<Abstract1>();
+    private ThreadLocal<StateTable> threadStates = new ThreadLocal<StateTable>();
     public HashMap<JNewExpr, List> constructorArgs = new HashMap<JNewExpr, List>();
     public HashMap<Value, JNewExpr> varToNewExpr = new HashMap<Value, JNewExpr>();
 
@@ -107,6 +128,10 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
         recordIntLocalVars();
         recordIntClassVars();
 
+        env = newEnvironment();
+    }
+
+    private Environment newEnvironment() {
         String ints[] = new String[local_ints.length + class_ints.length];
 
         /* add local ints */
@@ -119,7 +144,7 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
             ints[local_ints.length + i] = class_ints[i];
         }
 
-        env = new Environment(ints, reals);
+        return new Environment(ints, reals);
     }
 
     /* Instantiate a domain. */
@@ -134,19 +159,130 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
         this.g = g;
         this.jclass = jc;
 
+        Events.BuildEnvironment event = new Events.BuildEnvironment();
+        event.begin();
         buildEnvironment();
+        if (event.shouldCommit()) {
+            event.className = jclass.getName();
+            event.methodName = g.getBody().getMethod().getName();
+            event.unitCount = g.size();
+            event.dimension = env.getSize();
+            event.commit();
+        }
         instantiateDomain();
+        states = new StateTable(man);
+        try {
+            // Interned before anything else, so every empty state produced by
+            // a transfer function maps to this very instance.
+            bottom = states.intern(new Abstract1(man, env, true));
+        } catch (ApronException e) {
+            e.printStackTrace();
+        }
 
         loopHeads = new HashMap<Unit, Counter>();
         backJumps = new HashMap<Unit, Counter>();
-        for (Loop l : new LoopNestTree(g.getBody())) {
+        LoopNestTree loops = new LoopNestTree(g.getBody());
+        for (Loop l : loops) {
             loopHeads.put(l.getHead(), new Counter(0));
             backJumps.put(l.getBackJumpStmt(), new Counter(0));
         }
+
+        // Recognise simple counting loops up front, so that their heads can
+        // be seeded with the closed-form invariant instead of widening.
+        inductions = new HashMap<Unit, LoopAccelerator.Induction>();
+        for (Loop l : loops) {
+            LoopAccelerator.Induction induction = LoopAccelerator.recognise(l, loops, g);
+            if (induction != null)
+                inductions.put(l.getHead(), induction);
+        }
+    }
+
+    public int loopCount() {
+        return loopHeads.size();
+    }
+
+    public int acceleratedLoopCount() {
+        return inductions.size();
+    }
+
+    Manager man() {
+        Manager m = threadManager.get();
+        return (m == null)? man : m;
+    }
+
+    StateTable states() {
+        StateTable t = threadStates.get();
+        return (t == null)? states : t;
+    }
+
+    Environment env() {
+        Environment e = threadEnv.get();
+        return (e == null)? env : e;
+    }
+
+    Abstract1 bottom() {
+        Abstract1 b = threadBottom.get();
+        return (b == null)? bottom : b;
+    }
+
+    // Sets up the calling thread to solve a part of this method.
+    void enterWorker() throws ApronException {
+        if (threadManager.get() == null)
+            threadManager.set(new Polka(true));
+        if (threadStates.get() == null) {
+            threadStates.set(new StateTable(threadManager.get()));
+            threadEnv.set(newEnvironment());
+            threadBottom.set(threadStates.get().intern(new Abstract1(man(), env(), true)));
+        }
+    }
+
+    // Drops what enterWorker set up for the calling thread. The states it
+    // produced stay valid, but are foreign to its next enterWorker.
+    void leaveWorker() {
+        threadStates.remove();
+        threadEnv.remove();
+        threadBottom.remove();
+    }
+
+    // Rebuilds a state computed by another thread in this thread's
+    // environment. Only the environment-free constraints of the other
+    // state are read, so its native environment is left alone.
+    Abstract1 adopt(Abstract1 elem) throws ApronException {
+        Lincons0[] constraints = elem.getAbstract0Ref().toLincons(man());
+        Lincons1[] local = new Lincons1[constraints.length];
+        for (int i = 0; i < constraints.length; i++)
+            local[i] = new Lincons1(env(), constraints[i]);
+        return canonical(new Abstract1(man(), env()).meetCopy(man(), local));
+    }
+
+    // Records the fixpoint of a unit for getFlowBefore, when the flow was
+    // computed by the ParallelSolver rather than doAnalysis.
+    synchronized void setFlowBefore(Unit unit, AWrapper flow) {
+        unitToBeforeFlow.put(unit, flow);
     }
 
     void run() {
-        doAnalysis();
+        Events.Fixpoint event = new Events.Fixpoint();
+        event.begin();
+        if (Boolean.getBoolean("sae.parallel") && g.size() >= PARALLEL_THRESHOLD) {
+            solvedInParallel = true;
+            new ParallelSolver(this).solve();
+        } else {
+            doAnalysis();
+        }
+        if (event.shouldCommit()) {
+            event.className = jclass.getName();
+            event.methodName = g.getBody().getMethod().getName();
+            event.unitCount = g.size();
+            event.dimension = env.getSize();
+            event.iterations = flowIterations;
+            event.widenings = widenings;
+            event.memoHits = memoHits;
+            event.memoMisses = memoMisses;
+            event.joinsSkipped = joinsSkipped;
+            event.prunedVisits = prunedVisits;
+            event.commit();
+        }
     }
     
     // We have different representations of intervals in the code.
@@ -154,7 +290,7 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
     // actual interval as used by Apron.
     public Interval coerceInterval(Object o, Abstract1 elem) throws ApronException{
         if(o instanceof Local){
-            return elem.getBound(man, ((Local)o).getName());
+            return elem.getBound(man(), ((Local)o).getName());
         }else if(o instanceof ParameterRef){
             // Parameters are unknown and can thus TOP
             Interval interval = new Interval();
@@ -208,37 +344,48 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
                 scalarVal(sub.sup()) <= scalarVal(in.sup()));
     }
     
+    // Narrows the left interval to the values for which "left condition
+    // right" can hold for some value of the right interval. If there are
+    // none, this is bottom, and the analysis takes the branch as dead, so
+    // it must only be empty if the condition really cannot hold.
     private Interval computeInequality(String condition, Interval left, Interval right){
-        // If they don't overlap, set to bottom.
-        if(!intervalsOverlapping(left, right)){
-            Interval interval = new Interval();
-            interval.setBottom();
-            return interval;
-        }
-        
         double left_i = scalarVal(left.inf());
-        double left_s = scalarVal(right.sup());
-        double right_i = scalarVal(left.inf());
+        double left_s = scalarVal(left.sup());
+        double right_i = scalarVal(right.inf());
         double right_s = scalarVal(right.sup());
         
         /* */ if(condition.equals("==")){
-            return new Interval(max(left_i, right_i), min(left_s, right_s));
+            return boundedInterval(max(left_i, right_i), min(left_s, right_s));
         }else if(condition.equals("!=")){
-            // Can't express, approximate by equating it to >.
-            return new Interval(right_i+1, min(left_s, right_s));
+            // Can only cut off an end of the left side, and only if the
+            // right side is a single value.
+            if(right_i == right_s){
+                if(left_i == right_i) left_i += 1;
+                if(left_s == right_s) left_s -= 1;
+            }
+            return boundedInterval(left_i, left_s);
         }else if(condition.equals("<=")){
-            return new Interval(left_i, min(left_s, right_i));
+            return boundedInterval(left_i, min(left_s, right_s));
         }else if(condition.equals("<")){
-            return new Interval(left_i, min(left_s, right_i-1));
+            return boundedInterval(left_i, min(left_s, right_s-1));
         }else if(condition.equals(">=")){
-            return new Interval(right_i, min(left_s, right_s));
+            return boundedInterval(max(left_i, right_i), left_s);
         }else if(condition.equals(">")){
-            return new Interval(right_i+1, min(left_s, right_s));
+            return boundedInterval(max(left_i, right_i+1), left_s);
         }else{
             return null;
         }
     }
     
+    private Interval boundedInterval(double inf, double sup){
+        if(inf <= sup){
+            return new Interval(inf, sup);
+        }
+        Interval interval = new Interval();
+        interval.setBottom();
+        return interval;
+    }
+    
     // We need this to figure out what the opposite of a comparison is.
     private String reverseInequality(String condition){
         /* */ if(condition.equals("==")){
@@ -261,132 +408,48 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
     @Override
     protected void flowThrough(AWrapper inWrapper, Unit op,
                                List<AWrapper> fallOutWrappers, List<AWrapper> branchOutWrappers) {
+        ++flowIterations;
         try{
             Stmt s = (Stmt) op;
-            Abstract1 elem = inWrapper.get();
-            AWrapper out = new AWrapper(new Abstract1(man, elem));
-            out.man = man;
-            AWrapper outBranch = new AWrapper(new Abstract1(man, elem));
-            outBranch.man = man;
-            
-            if (s instanceof JInvokeStmt){
-                // JInvokeStmts that contain JSpecialInvokeExprs are constructors.
-                // We need to record their arguments for use in the verifier.
-                Value expr = ((JInvokeStmt)s).getInvokeExpr();
-                if(expr instanceof JSpecialInvokeExpr){
-                    JSpecialInvokeExpr invoke = ((JSpecialInvokeExpr)expr);
-                    constructorArgs.put(varToNewExpr.get(invoke.getBase()), invoke.getArgs());
-                }
-            }else if (s instanceof DefinitionStmt && !isIntValue(((DefinitionStmt)s).getLeftOp())){
-                // Definitions with a JNewExpr are instantiators. Since the PAG
-                // points us to these rather than the constructor invocation, we
-                // need to associate the variable with it here.
-                DefinitionStmt sd = (DefinitionStmt)s;
-                Value rhs = sd.getRightOp();
-                if(rhs instanceof JNewExpr){
-                    varToNewExpr.put(sd.getLeftOp(), (JNewExpr)rhs);
-                }
-            }else if (s instanceof DefinitionStmt) {
-                // This is an assignment statement. We use this to set new intervals.
-                DefinitionStmt sd = (DefinitionStmt)s;
-                String var = ((Local)sd.getLeftOp()).getName();
-                Value rhs = sd.getRightOp();
-           
-                Interval coeff = null;
-                /* */ if(rhs instanceof IntConstant){
-                    coeff = coerceInterval(rhs, elem);
-                }else if(rhs instanceof Local){
-                    coeff = coerceInterval(rhs, elem);
-                }else if(rhs instanceof ParameterRef){
-                    coeff = coerceInterval(rhs, elem);
-                }else{
-                    // If we have a binary op, we need to appropriately combine both intervals.
-                    Interval left = coerceInterval(((BinopExpr)rhs).getOp1(), elem);
-                    Interval right = coerceInterval(((BinopExpr)rhs).getOp2(), elem);
-                    double left_i = scalarVal(left.inf());
-                    double left_s = scalarVal(right.sup());
-                    double right_i = scalarVal(left.inf());
-                    double right_s = scalarVal(right.sup());
-                    
-                    if(rhs instanceof JMulExpr){
-                        coeff = new Interval(
-                                min(left_i*right_i, left_i*right_s, left_s*right_i, left_s*right_s),
-                                max(left_i*right_i, left_i*right_s, left_s*right_i, left_s*right_s));
-                    }else if(rhs instanceof JSubExpr){
-                        coeff = new Interval(left_i-right_i, left_s-right_s);
-                    }else if(rhs instanceof JAddExpr){
-                        coeff = new Interval(left_i+right_i, left_s+right_s);
-                    }else{
-                        throw new Exception("Unsupported right hand side: "+rhs);
+            recordAllocation(s);
+
+            Transfer transfer;
+            if (inWrapper.get() == bottom()){
+                // The unit is unreachable, and so is everything it leads to.
+                // Passing bottom on unchanged means Soot sees no change on the
+                // successors and stops visiting the dead subgraph.
+                ++prunedVisits;
+                transfer = new Transfer(bottom(), bottom(), isAssignment(s));
+            }else if (isNumeric(s)){
+                // Inputs are hash-consed, so revisiting a unit with an unchanged
+                // state finds the previous outputs in the memo and skips the
+                // native work entirely.
+                Abstract1 elem = states().intern(inWrapper.get());
+                inWrapper.set(elem);
+                transfer = lookupTransfer(op, elem);
+                if (transfer == null){
+                    try{
+                        transfer = computeTransfer(s, elem);
+                    }catch(Exception ex){
+                        ex.printStackTrace();
+                        transfer = unknownTransfer(s, elem);
                     }
+                    storeTransfer(op, elem, transfer);
                 }
-                Linexpr1 expr = new Linexpr1(elem.getEnvironment());
-                expr.setCst(coeff);
-                out.get().assign(man, new String[]{var}, new Linexpr1[]{expr}, elem);
-                
-                fallOutWrappers.add(out);
-            } else if (s instanceof JIfStmt) {
-                // These are the branches.
-                // As both left and right hand side might be variables, we need to
-                // potentially compute the interval change for both. For the fallOut
-                // branch, we also need to compute the inverse of the condition.
-                // To reduce bloat we have a computeInequality method that does the
-                // actual interval change, and a reverseInequality method to compute
-                // the inverse of the comparison.
-                IfStmt ifStmt = (JIfStmt) s;
-                BinopExpr condition = (BinopExpr)ifStmt.getCondition();
-                Value left = condition.getOp1();
-                Value right = condition.getOp2();
-                String leftInequality = null, rightInequality = null;
-                
-                /* */ if(condition instanceof JEqExpr){
-                    leftInequality = "==";
-                    rightInequality = "==";
-                }else if(condition instanceof JNeExpr){
-                    leftInequality = "!=";
-                    rightInequality = "!=";
-                }else if(condition instanceof JGeExpr){
-                    leftInequality = ">=";
-                    rightInequality = "<=";
-                }else if(condition instanceof JGtExpr){
-                    leftInequality = ">";
-                    rightInequality = "<";
-                }else if(condition instanceof JLeExpr){
-                    leftInequality = "<=";
-                    rightInequality = ">=";
-                }else if(condition instanceof JLtExpr){
-                    leftInequality = "<";
-                    rightInequality = ">";
-                }else{
-                    throw new Exception("Unsupported condition: "+condition);
-                }
+            }else{
+                // Nothing numeric happens here, so the state passes unchanged.
+                Abstract1 elem = inWrapper.get();
+                transfer = new Transfer(elem, elem, false);
+            }
 
-                Interval left_int = coerceInterval(left, elem);
-                Interval right_int = coerceInterval(right, elem);
-                
-                // Compute for left hand side if it is a variable
-                Linexpr1 expr;
-                if(left instanceof Local){
-                    expr = new Linexpr1(elem.getEnvironment());
-                    expr.setCst(computeInequality(leftInequality, left_int, right_int));
-                    outBranch.get().assign(man, new String[]{((Local)left).getName()}, new Linexpr1[]{expr}, elem);
-                    // Compute the inverse for the fallOut.
-                    expr = new Linexpr1(elem.getEnvironment());
-                    expr.setCst(computeInequality(reverseInequality(leftInequality), left_int, right_int));
-                    out.get().assign(man, new String[]{((Local)left).getName()}, new Linexpr1[]{expr}, elem);
-                }
-                
-                // Compute for right hand side if it is a variable.
-                if(right instanceof Local){
-                    expr = new Linexpr1(elem.getEnvironment());
-                    expr.setCst(computeInequality(reverseInequality(rightInequality), right_int, left_int));
-                    outBranch.get().assign(man, new String[]{((Local)right).getName()}, new Linexpr1[]{expr}, elem);
-                    // Compute the inverse for the fallOut.
-                    expr = new Linexpr1(elem.getEnvironment());
-                    expr.setCst(computeInequality(rightInequality, right_int, left_int));
-                    out.get().assign(man, new String[]{((Local)right).getName()}, new Linexpr1[]{expr}, elem);
-                }
+            AWrapper out = new AWrapper(transfer.fall);
+            out.man = man();
+            AWrapper outBranch = new AWrapper(transfer.branch);
+            outBranch.man = man();
+            if (transfer.addFall){
+                fallOutWrappers.add(out);
             }
+            
             // Commit the computation by copying it over.
             for(AWrapper wrapper : fallOutWrappers){
                 wrapper.copy(out);
@@ -397,15 +460,246 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
             }
         }catch(Exception ex){
             ex.printStackTrace();
+            // The outputs would otherwise stay at bottom, which would make
+            // everything after this unit look unreachable.
+            AWrapper out = new AWrapper(top());
+            out.man = man();
+            for(AWrapper wrapper : fallOutWrappers){
+                wrapper.copy(out);
+            }
+            for(AWrapper wrapper : branchOutWrappers){
+                wrapper.copy(out);
+            }
         }
     }
 
+    private synchronized void recordAllocation(Stmt s) {
+        if (s instanceof JInvokeStmt){
+            // JInvokeStmts that contain JSpecialInvokeExprs are constructors.
+            // We need to record their arguments for use in the verifier.
+            Value expr = ((JInvokeStmt)s).getInvokeExpr();
+            if(expr instanceof JSpecialInvokeExpr){
+                JSpecialInvokeExpr invoke = ((JSpecialInvokeExpr)expr);
+                constructorArgs.put(varToNewExpr.get(invoke.getBase()), invoke.getArgs());
+            }
+        }else if (s instanceof DefinitionStmt && !isIntValue(((DefinitionStmt)s).getLeftOp())){
+            // Definitions with a JNewExpr are instantiators. Since the PAG
+            // points us to these rather than the constructor invocation, we
+            // need to associate the variable with it here.
+            DefinitionStmt sd = (DefinitionStmt)s;
+            Value rhs = sd.getRightOp();
+            if(rhs instanceof JNewExpr){
+                varToNewExpr.put(sd.getLeftOp(), (JNewExpr)rhs);
+            }
+        }
+    }
+
+    private boolean isAssignment(Stmt s) {
+        return s instanceof DefinitionStmt && isIntValue(((DefinitionStmt)s).getLeftOp());
+    }
+
+    private boolean isNumeric(Stmt s) {
+        return isAssignment(s) || s instanceof JIfStmt;
+    }
+
+    boolean isBottom(Abstract1 elem) {
+        return elem == bottom();
+    }
+
+    // Whether the analysis found no state that reaches the unit.
+    // All empty states flowing through doAnalysis are the canonical bottom,
+    // so the identity test decides. Only the bottoms of the parallel
+    // solver's threads need the native test.
+    public boolean isUnreachable(Unit unit) {
+        Abstract1 elem = getFlowBefore(unit).get();
+        if (elem == bottom())
+            return true;
+        if (!solvedInParallel)
+            return false;
+        try {
+            return elem.isBottom(man());
+        } catch (ApronException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private Transfer lookupTransfer(Unit op, Abstract1 elem) {
+        IdentityHashMap<Abstract1, Transfer> transfers = memo.get(op);
+        Transfer transfer = (transfers == null)? null : transfers.get(elem);
+        if (transfer == null){
+            ++memoMisses;
+        }else{
+            ++memoHits;
+        }
+        return transfer;
+    }
+
+    private void storeTransfer(Unit op, Abstract1 elem, Transfer transfer) {
+        IdentityHashMap<Abstract1, Transfer> transfers = memo.get(op);
+        if (transfers == null){
+            transfers = new IdentityHashMap<Abstract1, Transfer>();
+            memo.put(op, transfers);
+        }
+        transfers.put(elem, transfer);
+    }
+
+    // Computes the fall and branch outputs of a numeric statement.
+    // The results are made canonical, as they are the inputs of the successors.
+    private Transfer computeTransfer(Stmt s, Abstract1 elem) throws Exception {
+        AWrapper out = new AWrapper(new Abstract1(man(), elem));
+        out.man = man();
+        AWrapper outBranch = new AWrapper(new Abstract1(man(), elem));
+        outBranch.man = man();
+        boolean addFall = false;
+
+        if (s instanceof DefinitionStmt) {
+            // This is an assignment statement. We use this to set new intervals.
+            DefinitionStmt sd = (DefinitionStmt)s;
+            String var = ((Local)sd.getLeftOp()).getName();
+            Value rhs = sd.getRightOp();
+       
+            Interval coeff = null;
+            /* */ if(rhs instanceof IntConstant){
+                coeff = coerceInterval(rhs, elem);
+            }else if(rhs instanceof Local){
+                coeff = coerceInterval(rhs, elem);
+            }else if(rhs instanceof ParameterRef){
+                coeff = coerceInterval(rhs, elem);
+            }else{
+                // If we have a binary op, we need to appropriately combine both intervals.
+                Interval left = coerceInterval(((BinopExpr)rhs).getOp1(), elem);
+                Interval right = coerceInterval(((BinopExpr)rhs).getOp2(), elem);
+                double left_i = scalarVal(left.inf());
+                double left_s = scalarVal(left.sup());
+                double right_i = scalarVal(right.inf());
+                double right_s = scalarVal(right.sup());
+                
+                if(rhs instanceof JMulExpr){
+                    coeff = new Interval(
+                            min(left_i*right_i, left_i*right_s, left_s*right_i, left_s*right_s),
+                            max(left_i*right_i, left_i*right_s, left_s*right_i, left_s*right_s));
+                }else if(rhs instanceof JSubExpr){
+                    coeff = new Interval(left_i-right_s, left_s-right_i);
+                }else if(rhs instanceof JAddExpr){
+                    coeff = new Interval(left_i+right_i, left_s+right_s);
+                }else{
+                    throw new Exception("Unsupported right hand side: "+rhs);
+                }
+            }
+            Linexpr1 expr = new Linexpr1(elem.getEnvironment());
+            expr.setCst(coeff);
+            out.get().assign(man(), new String[]{var}, new Linexpr1[]{expr}, elem);
+            
+            addFall = true;
+        } else if (s instanceof JIfStmt) {
+            // These are the branches.
+            // As both left and right hand side might be variables, we need to
+            // potentially compute the interval change for both. For the fallOut
+            // branch, we also need to compute the inverse of the condition.
+            // To reduce bloat we have a computeInequality method that does the
+            // actual interval change, and a reverseInequality method to compute
+            // the inverse of the comparison.
+            IfStmt ifStmt = (JIfStmt) s;
+            BinopExpr condition = (BinopExpr)ifStmt.getCondition();
+            Value left = condition.getOp1();
+            Value right = condition.getOp2();
+            String leftInequality = null, rightInequality = null;
+            
+            /* */ if(condition instanceof JEqExpr){
+                leftInequality = "==";
+                rightInequality = "==";
+            }else if(condition instanceof JNeExpr){
+                leftInequality = "!=";
+                rightInequality = "!=";
+            }else if(condition instanceof JGeExpr){
+                leftInequality = ">=";
+                rightInequality = "<=";
+            }else if(condition instanceof JGtExpr){
+                leftInequality = ">";
+                rightInequality = "<";
+            }else if(condition instanceof JLeExpr){
+                leftInequality = "<=";
+                rightInequality = ">=";
+            }else if(condition instanceof JLtExpr){
+                leftInequality = "<";
+                rightInequality = ">";
+            }else{
+                throw new Exception("Unsupported condition: "+condition);
+            }
+
+            Interval left_int = coerceInterval(left, elem);
+            Interval right_int = coerceInterval(right, elem);
+            
+            // Compute for left hand side if it is a variable
+            Linexpr1 expr;
+            if(left instanceof Local){
+                expr = new Linexpr1(elem.getEnvironment());
+                expr.setCst(computeInequality(leftInequality, left_int, right_int));
+                outBranch.get().assign(man(), new String[]{((Local)left).getName()}, new Linexpr1[]{expr}, elem);
+                // Compute the inverse for the fallOut.
+                expr = new Linexpr1(elem.getEnvironment());
+                expr.setCst(computeInequality(reverseInequality(leftInequality), left_int, right_int));
+                out.get().assign(man(), new String[]{((Local)left).getName()}, new Linexpr1[]{expr}, elem);
+            }
+            
+            // Compute for right hand side if it is a variable. rightInequality
+            // is the condition seen from the right, so it holds on the branch.
+            if(right instanceof Local){
+                expr = new Linexpr1(elem.getEnvironment());
+                expr.setCst(computeInequality(rightInequality, right_int, left_int));
+                outBranch.get().assign(man(), new String[]{((Local)right).getName()}, new Linexpr1[]{expr}, elem);
+                // Compute the inverse for the fallOut.
+                expr = new Linexpr1(elem.getEnvironment());
+                expr.setCst(computeInequality(reverseInequality(rightInequality), right_int, left_int));
+                out.get().assign(man(), new String[]{((Local)right).getName()}, new Linexpr1[]{expr}, elem);
+            }
+        }
+        return new Transfer(canonical(out.get()), canonical(outBranch.get()), addFall);
+    }
+
+    // The outputs of a statement we could not compute the transfer for,
+    // such as a division or an assignment to a field. Bottom would claim
+    // that the successors are unreachable, so instead the input flows on
+    // with the assigned variable unknown, and unchanged past a condition.
+    private Transfer unknownTransfer(Stmt s, Abstract1 elem) throws ApronException {
+        if (!(s instanceof DefinitionStmt))
+            return new Transfer(elem, elem, false);
+        Value lhs = ((DefinitionStmt)s).getLeftOp();
+        String var = null;
+        if (lhs instanceof Local){
+            var = ((Local)lhs).getName();
+        }else if (lhs instanceof FieldRef){
+            var = ((FieldRef)lhs).getField().getName();
+        }
+        Abstract1 out = elem;
+        if (var != null && env().hasVar(var)){
+            out = states().intern(elem.forgetCopy(man(), var, false));
+        }
+        return new Transfer(out, out, true);
+    }
+
+    // Interns a transfer output, mapping every empty state to the canonical
+    // bottom so the cheap identity test in flowThrough catches it.
+    private Abstract1 canonical(Abstract1 elem) throws ApronException {
+        if (elem.isBottom(man()))
+            return bottom();
+        return states().intern(elem);
+    }
+
     @Override
     protected void copy(AWrapper source, AWrapper dest) {
+        // States are never modified in place once they leave flowThrough or
+        // merge, so sharing keeps them canonical and saves a native copy.
+        dest.set(source.get());
+    }
+
+    private Abstract1 top() {
         try {
-            dest.set(new Abstract1(man, source.get()));
+            return states().intern(new Abstract1(man(), env()));
         } catch (ApronException e) {
             e.printStackTrace();
+            return null;
         }
     }
 
@@ -413,7 +707,7 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
     protected AWrapper entryInitialFlow() {
         Abstract1 top = null;
         try {
-            top = new Abstract1(man, env);
+            top = new Abstract1(man(), env());
         } catch (ApronException e) {
         }
         return new AWrapper(top);
@@ -427,6 +721,37 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
         }
     }
 
+    // The outputs of flowThrough for one input state of a unit.
+    private static class Transfer {
+        Abstract1 fall, branch;
+        boolean addFall;
+
+        Transfer(Abstract1 f, Abstract1 b, boolean a) {
+            fall = f;
+            branch = b;
+            addFall = a;
+        }
+    }
+
+    // Joins two states, skipping the native join if one already includes
+    // the other, which is common once a branch has stabilised.
+    private Abstract1 join(Abstract1 a1, Abstract1 a2) throws ApronException {
+        Abstract1 bottom = bottom();
+        if (a1 == bottom) {
+            ++joinsSkipped;
+            return a2;
+        }
+        if (a1 == a2 || a2 == bottom || a2.isIncluded(man(), a1)) {
+            ++joinsSkipped;
+            return a1;
+        }
+        if (a1.isIncluded(man(), a2)) {
+            ++joinsSkipped;
+            return a2;
+        }
+        return a1.joinCopy(man(), a2);
+    }
+
     @Override
     protected void merge(Unit succNode, AWrapper w1, AWrapper w2, AWrapper w3) {
         Counter count = loopHeads.get(succNode);
@@ -438,17 +763,36 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
         try {
             if (count != null) {
                 ++count.value;
-                if (count.value < WIDENING_THRESHOLD) {
-                    a3 = a1.joinCopy(man, a2);
+                // Widening with bottom gains nothing, and two bottoms would
+                // widen to a new bottom that is not the canonical one.
+                if (count.value < WIDENING_THRESHOLD || a1 == bottom() || a2 == bottom()) {
+                    a3 = join(a1, a2);
                 } else {
-                    a3 = a1.widening(man, a2);
+                    Events.Widening event = new Events.Widening();
+                    event.begin();
+                    a3 = a1.widening(man(), a2);
+                    ++widenings;
+                    if (event.shouldCommit()) {
+                        event.className = jclass.getName();
+                        event.methodName = g.getBody().getMethod().getName();
+                        event.loopHead = succNode.toString();
+                        event.dimension = env.getSize();
+                        event.iteration = count.value;
+                        event.commit();
+                    }
+                }
+                LoopAccelerator.Induction induction = inductions.get(succNode);
+                if (induction != null) {
+                    a3 = induction.apply(man(), a3);
                 }
             } else {
-                a3 = a1.joinCopy(man, a2);
+                a3 = join(a1, a2);
             }
             w3.set(a3);
         } catch (Exception e) {
             System.out.println(e);
+            // Never fall back to bottom here, see flowThrough.
+            w3.set(top());
         }
     }
 
@@ -460,23 +804,18 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
         Abstract1 a3 = null;
 
         try {
-            a3 = a1.joinCopy(man, a2);
+            a3 = join(a1, a2);
         } catch (ApronException e) {
             e.printStackTrace();
+            a3 = top();
         }
         trg.set(a3);
     }
 
     @Override
     protected AWrapper newInitialFlow() {
-        Abstract1 bot = null;
-
-        try {
-            bot = new Abstract1(man, env, true);
-        } catch (ApronException e) {
-        }
-        AWrapper a = new AWrapper(bot);
-        a.man = man;
+        AWrapper a = new AWrapper(bottom());
+        a.man = man();
         return a;
 
     }
@@ -496,4 +835,13 @@ public class Analysis extends ForwardBranchedFlowAnalysis<AWrapper> {
     public SootClass jclass;
     private String class_ints[]; // integer class variables where the method is
     // defined
+    // The profiling counters are not synchronised, so they are approximate
+    // when the method is solved in parallel.
+    private int flowIterations; // number of flowThrough calls, for profiling
+    private int widenings; // number of widening steps, for profiling
+    private int memoHits, memoMisses; // transfer memo lookups, for profiling
+    private int joinsSkipped; // joins avoided through inclusion, for profiling
+    private int prunedVisits; // visits of unreachable units, for profiling
+    private Abstract1 bottom; // canonical empty state, see bottom()
+    private boolean solvedInParallel; // whether run() used the ParallelSolver
 }
@@ -0,0 +1,440 @@
+package ch.ethz.sae;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import soot.G;
+
+// Verifies every class of a jar or class directory.
+// Soot keeps its state in the global G singleton, so classes cannot be
+// verified concurrently within one JVM. Instead we fork a pool of worker
+// JVMs, each of which verifies one class at a time and resets Soot in
+// between. Classes are handed out largest first to whichever worker is
+// free, which keeps the workers busy until the very end. The results are
+// collected and printed in class name order, in the same format as
+// Verifier prints them.
+// The workers are started with the JVM options of the parent (so that
+// -Xmx, -Dsae.parallel or -XX:StartFlightRecording apply to them as well)
+// plus any given with -J. A worker that takes longer than the -t timeout
+// on a class is killed, and the class is reported as not OK.
+// Whenever a worker fails like this, or cannot be started at all, the
+// classes it could not verify are reported as not OK and the exit code
+// is non-zero, so that a broken run does not pass for a clean one.
+public class BatchVerifier {
+
+    private static final String WORKER_FLAG = "--worker";
+    private static final String RESULT_PREFIX = "#RESULT ";
+    private static final String READY = "#READY";
+    private static final String USAGE = "Usage: java -classpath soot-2.5.0.jar:./bin ch.ethz.sae.BatchVerifier"
+        + " [-j workers] [-t seconds per class] [-J<worker JVM option>]... <jar or class directory>";
+
+    private static Timer timer = new Timer("verifier-timeout", true);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && args[0].equals(WORKER_FLAG)) {
+            worker();
+            return;
+        }
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        int timeout = 0;
+        List<String> jvmArgs = inheritedJvmArgs();
+        String target = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-j") && i + 1 < args.length) {
+                    workers = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("-t") && i + 1 < args.length) {
+                    timeout = Integer.parseInt(args[++i]);
+                } else if (args[i].startsWith("-J") && args[i].length() > 2) {
+                    jvmArgs.add(args[i].substring(2));
+                } else {
+                    target = args[i];
+                }
+            }
+        } catch (NumberFormatException e) {
+            target = null;
+        }
+        if (target == null || workers < 1 || timeout < 0) {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        File source = new File(target);
+        List<ClassEntry> classes = source.isDirectory() ? listDirectory(source) : listJar(source);
+        Map<String, int[]> results = new TreeMap<String, int[]>();
+        boolean ok = run(source, classes, workers, jvmArgs, timeout, results);
+
+        for (Map.Entry<String, int[]> result : results.entrySet()) {
+            Verifier.printResult(result.getKey(), result.getValue()[0], result.getValue()[1]);
+        }
+        if (!ok)
+            System.exit(1);
+    }
+
+    // The options this JVM was started with, minus those that cannot be
+    // shared with the workers: a debugger agent would have every worker
+    // listen on the same port, and the library path is passed on anyway.
+    private static List<String> inheritedJvmArgs() {
+        List<String> args = new ArrayList<String>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-agentlib:jdwp") || arg.startsWith("-Xrunjdwp") || arg.equals("-Xdebug")
+                    || arg.startsWith("-Djava.library.path="))
+                continue;
+            args.add(arg);
+        }
+        return args;
+    }
+
+    // Gives each worker JVM its own flight recording file, as they would
+    // overwrite each other's recordings otherwise.
+    private static String workerJvmArg(String arg, String worker) {
+        if (!arg.startsWith("-XX:StartFlightRecording"))
+            return arg;
+        StringBuilder result = new StringBuilder();
+        for (String option : arg.split(",")) {
+            if (result.length() > 0)
+                result.append(',');
+            int start = option.indexOf("filename=");
+            if (start >= 0) {
+                String file = option.substring(start + "filename=".length());
+                int dot = file.lastIndexOf('.');
+                if (dot > file.lastIndexOf(File.separatorChar))
+                    file = file.substring(0, dot) + "-" + worker + file.substring(dot);
+                else
+                    file = file + "-" + worker;
+                option = option.substring(0, start) + "filename=" + file;
+            }
+            result.append(option);
+        }
+        return result.toString();
+    }
+
+    // A class to verify, along with its class file size as a cost estimate.
+    private static class ClassEntry {
+        String name;
+        long size;
+
+        ClassEntry(String n, long s) {
+            name = n;
+            size = s;
+        }
+    }
+
+    // Reads the class names from the jar's central directory, without
+    // extracting anything.
+    private static List<ClassEntry> listJar(File jar) throws IOException {
+        List<ClassEntry> classes = new ArrayList<ClassEntry>();
+        ZipFile zip = new ZipFile(jar);
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && isClassFile(entry.getName())) {
+                    classes.add(new ClassEntry(className(entry.getName()), entry.getSize()));
+                }
+            }
+        } finally {
+            zip.close();
+        }
+        return classes;
+    }
+
+    private static List<ClassEntry> listDirectory(File root) {
+        List<ClassEntry> classes = new ArrayList<ClassEntry>();
+        LinkedList<File> pending = new LinkedList<File>();
+        pending.add(root);
+        String rootPath = root.getAbsolutePath();
+        while (!pending.isEmpty()) {
+            File[] files = pending.removeFirst().listFiles();
+            if (files == null)
+                continue;
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    pending.add(file);
+                } else {
+                    String path = file.getAbsolutePath().substring(rootPath.length() + 1)
+                        .replace(File.separatorChar, '/');
+                    if (isClassFile(path)) {
+                        classes.add(new ClassEntry(className(path), file.length()));
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    // Skips module-info, package-info and anything else that is not a
+    // class name.
+    private static boolean isClassFile(String path) {
+        return path.endsWith(".class") && !path.contains("-");
+    }
+
+    private static String className(String path) {
+        return path.substring(0, path.length() - ".class".length()).replace('/', '.');
+    }
+
+    // Fills in the results and returns whether all workers got through
+    // without failing.
+    private static boolean run(File source, List<ClassEntry> classes, int workers,
+            List<String> jvmArgs, int timeout, Map<String, int[]> results) throws InterruptedException {
+        // Largest first: the expensive classes start early and the small
+        // ones fill the gaps at the end.
+        Collections.sort(classes, new Comparator<ClassEntry>() {
+            public int compare(ClassEntry a, ClassEntry b) {
+                return (a.size < b.size) ? 1 : (a.size > b.size) ? -1 : a.name.compareTo(b.name);
+            }
+        });
+
+        LinkedList<ClassEntry> queue = new LinkedList<ClassEntry>(classes);
+        List<Worker> pool = new ArrayList<Worker>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < Math.min(workers, classes.size()); i++) {
+            Worker worker = new Worker(source, queue, results, jvmArgs, timeout);
+            Thread thread = new Thread(worker, "verifier-worker-" + i);
+            thread.start();
+            pool.add(worker);
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        boolean ok = true;
+        for (Worker worker : pool) {
+            ok &= !worker.failed;
+        }
+        // Left over if none of the workers could be started.
+        for (ClassEntry entry : queue) {
+            System.err.println("No worker left to verify " + entry.name);
+            results.put(entry.name, new int[]{0, 0});
+            ok = false;
+        }
+        return ok;
+    }
+
+    // Drives one worker JVM from the parent: hands it class names over its
+    // stdin and reads the results from its stdout. If the JVM dies (for
+    // instance because of a crash in the native Apron code), the class it
+    // was working on is reported as not OK and a fresh JVM is started. The
+    // same happens if the JVM does not answer within the timeout.
+    private static class Worker implements Runnable {
+        File source;
+        LinkedList<ClassEntry> queue;
+        Map<String, int[]> results;
+        List<String> jvmArgs;
+        int timeout; // seconds per class, 0 for none
+
+        Process process;
+        PrintStream toWorker;
+        BufferedReader fromWorker;
+        int started; // number of JVMs started so far
+        volatile boolean timedOut;
+        boolean failed; // whether any class was not verified by a worker
+
+        Worker(File s, LinkedList<ClassEntry> q, Map<String, int[]> r, List<String> a, int t) {
+            source = s;
+            queue = q;
+            results = r;
+            jvmArgs = a;
+            timeout = t;
+        }
+
+        public void run() {
+            try {
+                ClassEntry next;
+                while ((next = poll()) != null) {
+                    if (process == null && !start()) {
+                        // Leave the rest of the queue to the other workers.
+                        System.err.println("Could not start a worker to verify " + next.name);
+                        failed = true;
+                        report(next, new int[]{0, 0});
+                        return;
+                    }
+                    int[] flags = verify(next.name);
+                    if (flags == null) {
+                        if (timedOut)
+                            System.err.println("Worker timed out after " + timeout + "s while verifying " + next.name);
+                        else
+                            System.err.println("Worker died while verifying " + next.name);
+                        stop();
+                        failed = true;
+                        flags = new int[]{0, 0};
+                    } else if (timedOut) {
+                        // The result came in just as the timeout hit, but
+                        // the JVM is gone all the same.
+                        stop();
+                    }
+                    report(next, flags);
+                }
+            } finally {
+                stop();
+            }
+        }
+
+        private void report(ClassEntry entry, int[] flags) {
+            synchronized (results) {
+                results.put(entry.name, flags);
+            }
+        }
+
+        private ClassEntry poll() {
+            synchronized (queue) {
+                return queue.poll();
+            }
+        }
+
+        // Returns whether the JVM came up.
+        private boolean start() {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            String classpath = System.getProperty("java.class.path") + File.pathSeparator + source.getAbsolutePath();
+            List<String> command = new ArrayList<String>();
+            String name = Thread.currentThread().getName() + "-" + (started++);
+            command.add(java);
+            for (String arg : jvmArgs)
+                command.add(workerJvmArg(arg, name));
+            command.add("-cp");
+            command.add(classpath);
+            if (System.getProperty("java.library.path") != null)
+                command.add("-Djava.library.path=" + System.getProperty("java.library.path"));
+            command.add(BatchVerifier.class.getName());
+            command.add(WORKER_FLAG);
+
+            try {
+                ProcessBuilder builder = new ProcessBuilder(command);
+                builder.redirectErrorStream(false);
+                process = builder.start();
+                toWorker = new PrintStream(process.getOutputStream(), true);
+                fromWorker = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                new Thread(new Drain(process), Thread.currentThread().getName() + "-stderr").start();
+
+                // Wait for the JVM to come up, so that its start-up time does
+                // not count towards the timeout of the first class.
+                String line;
+                while ((line = fromWorker.readLine()) != null && !line.equals(READY)) {
+                    System.err.println(line);
+                }
+                if (line != null)
+                    return true;
+                System.err.println("Worker JVM exited on start-up: " + command);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (process != null) {
+                process.destroy();
+                process = null;
+            }
+            return false;
+        }
+
+        // Returns the flags for the class, or null if the worker died or
+        // was killed for taking too long. Anything else the worker prints is
+        // passed on to our stderr, so it does not end up in the report.
+        private int[] verify(String name) {
+            timedOut = false;
+            TimerTask kill = null;
+            if (timeout > 0) {
+                final Process p = process;
+                kill = new TimerTask() {
+                    public void run() {
+                        timedOut = true;
+                        p.destroy();
+                    }
+                };
+                timer.schedule(kill, timeout * 1000L);
+            }
+            try {
+                toWorker.println(name);
+                String line;
+                while ((line = fromWorker.readLine()) != null) {
+                    if (line.startsWith(RESULT_PREFIX)) {
+                        String[] parts = line.substring(RESULT_PREFIX.length()).split(" ");
+                        return new int[]{Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+                    }
+                    System.err.println(line);
+                }
+                return null;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            } finally {
+                if (kill != null)
+                    kill.cancel();
+            }
+        }
+
+        private void stop() {
+            if (process == null)
+                return;
+            toWorker.close();
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                process.destroy();
+            }
+            process = null;
+        }
+    }
+
+    // Forwards a worker's stderr to ours.
+    private static class Drain implements Runnable {
+        Process process;
+
+        Drain(Process p) {
+            process = p;
+        }
+
+        public void run() {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    System.err.println(line);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // Runs inside a worker JVM: verifies each class name read from stdin,
+    // resetting Soot before every class.
+    private static void worker() throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        System.out.println(READY);
+        System.out.flush();
+        String name;
+        while ((name = in.readLine()) != null) {
+            name = name.trim();
+            if (name.isEmpty())
+                continue;
+            int[] flags;
+            try {
+                G.reset();
+                flags = Verifier.verify(name);
+            } catch (Exception e) {
+                // Be pessimistic about classes we failed to analyse.
+                e.printStackTrace();
+                flags = new int[]{0, 0};
+            }
+            System.out.println(RESULT_PREFIX + name + " " + flags[0] + " " + flags[1]);
+            System.out.flush();
+        }
+    }
+}
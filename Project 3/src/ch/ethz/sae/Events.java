@@ -0,0 +1,134 @@
+package ch.ethz.sae;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+
+// Custom Flight Recorder events for the verifier phases.
+// These let us find the slow classes and methods in a recording without
+// having to attach a profiler to the native Apron code. Each event is
+// cheap when recording is off, so they stay enabled unconditionally.
+// jdk.jfr is available from JDK 11, and on JDK 8 from update 262 on.
+public class Events {
+
+    @Name("ch.ethz.sae.LoadClass")
+    @Label("Load Class")
+    @Category({"SAE", "Verifier"})
+    @Description("Soot loading a class and its support classes.")
+    public static class LoadClass extends Event {
+        @Label("Class")
+        String className;
+    }
+
+    @Name("ch.ethz.sae.PointsTo")
+    @Label("Points-To Analysis")
+    @Category({"SAE", "Verifier"})
+    @Description("Spark points-to analysis over all methods of a class.")
+    public static class PointsTo extends Event {
+        @Label("Class")
+        String className;
+        @Label("Entry Points")
+        int entryPoints;
+    }
+
+    @Name("ch.ethz.sae.BuildEnvironment")
+    @Label("Build Environment")
+    @Category({"SAE", "Analysis"})
+    @Description("Collection of the integer variables of a method into an Apron environment.")
+    public static class BuildEnvironment extends Event {
+        @Label("Class")
+        String className;
+        @Label("Method")
+        String methodName;
+        @Label("Units")
+        int unitCount;
+        @Label("Dimension")
+        int dimension;
+    }
+
+    @Name("ch.ethz.sae.Fixpoint")
+    @Label("Fixpoint")
+    @Category({"SAE", "Analysis"})
+    @Description("Fixpoint iteration of the numerical analysis over a method.")
+    public static class Fixpoint extends Event {
+        @Label("Class")
+        String className;
+        @Label("Method")
+        String methodName;
+        @Label("Units")
+        int unitCount;
+        @Label("Dimension")
+        int dimension;
+        @Label("Flow Iterations")
+        int iterations;
+        @Label("Widenings")
+        int widenings;
+        @Label("Memo Hits")
+        @Description("Numeric flowThrough calls answered from the transfer memo.")
+        int memoHits;
+        @Label("Memo Misses")
+        int memoMisses;
+        @Label("Joins Skipped")
+        @Description("Joins avoided because one operand included the other.")
+        int joinsSkipped;
+        @Label("Pruned Visits")
+        @Description("Visits of units that were found to be unreachable.")
+        int prunedVisits;
+    }
+
+    @Name("ch.ethz.sae.Acceleration")
+    @Label("Loop Acceleration")
+    @Category({"SAE", "Analysis"})
+    @Description("How many loops of a class were solved in closed form instead of by widening.")
+    public static class Acceleration extends Event {
+        @Label("Class")
+        String className;
+        @Label("Loops")
+        int loops;
+        @Label("Accelerated")
+        int accelerated;
+        @Label("Rate")
+        @Percentage
+        double rate;
+    }
+
+    @Name("ch.ethz.sae.Widening")
+    @Label("Widening")
+    @Category({"SAE", "Analysis"})
+    @Description("A widening step at a loop head.")
+    public static class Widening extends Event {
+        @Label("Class")
+        String className;
+        @Label("Method")
+        String methodName;
+        @Label("Loop Head")
+        String loopHead;
+        @Label("Dimension")
+        int dimension;
+        @Label("Iteration")
+        int iteration;
+    }
+
+    @Name("ch.ethz.sae.WeldCheck")
+    @Label("Weld Check")
+    @Category({"SAE", "Verifier"})
+    @Description("Verification of a single weldAt/weldBetween call site.")
+    public static class WeldCheck extends Event {
+        @Label("Class")
+        String className;
+        @Label("Method")
+        String methodName;
+        @Label("Kind")
+        String kind;
+        @Label("Call Site")
+        String callSite;
+        @Label("Allocation Sites")
+        @Description("Allocation sites of the receiver checked before the verdict was reached.")
+        int allocationSites;
+        @Label("OK")
+        boolean ok;
+    }
+}
@@ -0,0 +1,335 @@
+package ch.ethz.sae;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import apron.Abstract1;
+import apron.ApronException;
+import apron.DoubleScalar;
+import apron.Interval;
+import apron.Linexpr1;
+import apron.Manager;
+import apron.Scalar;
+import soot.Local;
+import soot.Unit;
+import soot.Value;
+import soot.jimple.BinopExpr;
+import soot.jimple.DefinitionStmt;
+import soot.jimple.IntConstant;
+import soot.jimple.Stmt;
+import soot.jimple.internal.JAddExpr;
+import soot.jimple.internal.JGeExpr;
+import soot.jimple.internal.JGtExpr;
+import soot.jimple.internal.JIfStmt;
+import soot.jimple.internal.JLeExpr;
+import soot.jimple.internal.JLtExpr;
+import soot.jimple.internal.JMulExpr;
+import soot.jimple.internal.JSubExpr;
+import soot.jimple.toolkits.annotation.logic.Loop;
+import soot.toolkits.graph.UnitGraph;
+
+// Closed-form acceleration of simple counting loops.
+// For a loop like for(i = a; i < b; i += c) we know without iterating that
+// i stays within [a, b-1+c] at the loop head, as long as i is only changed
+// by the single increment and b is not changed in the loop at all. Seeding
+// the loop head with this range lets the fixpoint converge in one pass
+// instead of going through the widening iterations.
+// The bound may be linear in loop-invariant locals, like n - 1 or 2*n + k.
+// javac evaluates such a bound into temporaries at the top of the loop
+// ($i0 = n - 1; if i >= $i0 ...), so we look through those assignments.
+public class LoopAccelerator {
+
+    // Tries to find an induction variable that controls the loop's exit.
+    // Returns null if the loop does not have the expected shape, in which
+    // case the analysis falls back to widening as usual.
+    public static Induction recognise(Loop loop, Iterable<Loop> allLoops, UnitGraph g) {
+        List<Stmt> body = loop.getLoopStatements();
+
+        // Walk the straight line of assignments from the head to the test.
+        // They run on every iteration right before the test, so the test
+        // sees exactly the values they compute. A temporary may only be
+        // computed from those before it: one that reads itself (like the
+        // n = n - 1 of while(i < --n)) or a local that an earlier one has
+        // already read changes from one iteration to the next.
+        HashMap<Local, Value> temps = new HashMap<Local, Value>();
+        HashSet<Stmt> tempDefs = new HashSet<Stmt>();
+        HashSet<Value> read = new HashSet<Value>();
+        Stmt s = loop.getHead();
+        while (!(s instanceof JIfStmt)) {
+            if (!(s instanceof DefinitionStmt) || tempDefs.size() >= body.size())
+                return null;
+            Value lhs = ((DefinitionStmt) s).getLeftOp();
+            Value rhs = ((DefinitionStmt) s).getRightOp();
+            if (!(lhs instanceof Local) || temps.containsKey(lhs) || !isLinear(rhs))
+                return null;
+            collectLocals(rhs, temps, read);
+            if (read.contains(lhs))
+                return null;
+            temps.put((Local) lhs, rhs);
+            tempDefs.add(s);
+
+            List<Unit> succs = g.getSuccsOf(s);
+            if (succs.size() != 1 || !body.contains(succs.get(0)))
+                return null;
+            s = (Stmt) succs.get(0);
+        }
+
+        JIfStmt test = (JIfStmt) s;
+        if (!(test.getCondition() instanceof BinopExpr))
+            return null;
+        BinopExpr condition = (BinopExpr) test.getCondition();
+
+        // Bring the condition into the form "var op bound" under which the
+        // loop continues. If the branch target is outside of the loop, the
+        // branch is the exit and the condition has to be negated.
+        String op = comparison(condition);
+        if (op == null)
+            return null;
+        if (!body.contains(test.getTarget()))
+            op = negate(op);
+
+        Value var = condition.getOp1();
+        Value bound = condition.getOp2();
+        if (!(var instanceof Local) || temps.containsKey(var)) {
+            var = condition.getOp2();
+            bound = condition.getOp1();
+            op = mirror(op);
+        }
+        if (!(var instanceof Local) || temps.containsKey(var) || !Analysis.isIntValue(var))
+            return null;
+        if (!(bound instanceof IntConstant || bound instanceof Local))
+            return null;
+
+        // The locals the bound is computed from, looking through the temporaries.
+        HashSet<Value> boundLocals = new HashSet<Value>();
+        collectLocals(bound, temps, boundLocals);
+        if (boundLocals.contains(var))
+            return null;
+
+        // The variable must have exactly one definition in the loop, which
+        // has to be a constant step and may not sit in a nested loop. The
+        // locals of the bound must not be defined in the loop at all, and
+        // the temporaries only at the head.
+        Integer stride = null;
+        for (Stmt d : body) {
+            if (!(d instanceof DefinitionStmt))
+                continue;
+            Value lhs = ((DefinitionStmt) d).getLeftOp();
+            if (boundLocals.contains(lhs))
+                return null;
+            if (temps.containsKey(lhs) && !tempDefs.contains(d))
+                return null;
+            if (!lhs.equals(var))
+                continue;
+            if (stride != null || inNestedLoop(d, loop, allLoops))
+                return null;
+            stride = stride(var, ((DefinitionStmt) d).getRightOp());
+            if (stride == null)
+                return null;
+        }
+        if (stride == null || stride == 0)
+            return null;
+
+        // The step has to move towards the bound.
+        if (stride > 0 && !(op.equals("<") || op.equals("<=")))
+            return null;
+        if (stride < 0 && !(op.equals(">") || op.equals(">=")))
+            return null;
+
+        return new Induction((Local) var, stride, bound, temps, op);
+    }
+
+    private static boolean isAtom(Value v) {
+        return v instanceof IntConstant || (v instanceof Local && Analysis.isIntValue(v));
+    }
+
+    // Constants, locals, sums and differences of those, and multiples by a constant.
+    private static boolean isLinear(Value v) {
+        if (isAtom(v))
+            return true;
+        if (v instanceof JAddExpr || v instanceof JSubExpr) {
+            BinopExpr e = (BinopExpr) v;
+            return isAtom(e.getOp1()) && isAtom(e.getOp2());
+        }
+        if (v instanceof JMulExpr) {
+            BinopExpr e = (BinopExpr) v;
+            return (e.getOp1() instanceof IntConstant && isAtom(e.getOp2()))
+                || (e.getOp2() instanceof IntConstant && isAtom(e.getOp1()));
+        }
+        return false;
+    }
+
+    private static void collectLocals(Value v, HashMap<Local, Value> temps, HashSet<Value> locals) {
+        if (v instanceof Local) {
+            if (temps.containsKey(v))
+                collectLocals(temps.get(v), temps, locals);
+            else
+                locals.add(v);
+        } else if (v instanceof BinopExpr) {
+            collectLocals(((BinopExpr) v).getOp1(), temps, locals);
+            collectLocals(((BinopExpr) v).getOp2(), temps, locals);
+        }
+    }
+
+    private static boolean inNestedLoop(Stmt s, Loop loop, Iterable<Loop> allLoops) {
+        for (Loop other : allLoops) {
+            if (other != loop && loop.getLoopStatements().contains(other.getHead())
+                    && other.getLoopStatements().contains(s))
+                return true;
+        }
+        return false;
+    }
+
+    // Returns c for var = var + c, var = c + var and var = var - c.
+    private static Integer stride(Value var, Value rhs) {
+        if (rhs instanceof JAddExpr) {
+            BinopExpr add = (BinopExpr) rhs;
+            if (add.getOp1().equals(var) && add.getOp2() instanceof IntConstant)
+                return ((IntConstant) add.getOp2()).value;
+            if (add.getOp2().equals(var) && add.getOp1() instanceof IntConstant)
+                return ((IntConstant) add.getOp1()).value;
+        } else if (rhs instanceof JSubExpr) {
+            BinopExpr sub = (BinopExpr) rhs;
+            if (sub.getOp1().equals(var) && sub.getOp2() instanceof IntConstant)
+                return -((IntConstant) sub.getOp2()).value;
+        }
+        return null;
+    }
+
+    private static String comparison(BinopExpr condition) {
+        /* */ if (condition instanceof JLtExpr) {
+            return "<";
+        } else if (condition instanceof JLeExpr) {
+            return "<=";
+        } else if (condition instanceof JGtExpr) {
+            return ">";
+        } else if (condition instanceof JGeExpr) {
+            return ">=";
+        } else {
+            return null;
+        }
+    }
+
+    private static String negate(String op) {
+        /* */ if (op.equals("<")) {
+            return ">=";
+        } else if (op.equals("<=")) {
+            return ">";
+        } else if (op.equals(">")) {
+            return "<=";
+        } else {
+            return "<";
+        }
+    }
+
+    // Swaps the operands: a < b is b > a.
+    private static String mirror(String op) {
+        /* */ if (op.equals("<")) {
+            return ">";
+        } else if (op.equals("<=")) {
+            return ">=";
+        } else if (op.equals(">")) {
+            return "<";
+        } else {
+            return "<=";
+        }
+    }
+
+    // An induction variable var that is stepped by stride while "var op bound" holds.
+    public static class Induction {
+        Local var;
+        int stride;
+        Value bound;
+        HashMap<Local, Value> temps; // head temporaries the bound is computed from
+        String op;
+
+        Induction(Local v, int s, Value b, HashMap<Local, Value> t, String o) {
+            var = v;
+            stride = s;
+            bound = b;
+            temps = t;
+            op = o;
+        }
+
+        // Extends the range of the variable in elem to its closed-form
+        // loop head invariant. The result includes elem, and applying this
+        // again to the result gives the same range.
+        public Abstract1 apply(Manager man, Abstract1 elem) throws ApronException {
+            if (elem.isBottom(man))
+                return elem;
+
+            Interval current = elem.getBound(man, var.getName());
+            double[] limit = evaluate(bound, man, elem);
+            Interval range = new Interval(current);
+
+            if (stride > 0) {
+                // The last value that passes the test is bound-1 (or bound),
+                // and one more step is taken from there.
+                if (Double.isInfinite(limit[1])) {
+                    range.setSup(infinity(1));
+                } else if (current.sup().isInfty() == 0) {
+                    double last = limit[1] + (op.equals("<") ? -1 : 0);
+                    range.setSup(new DoubleScalar(Math.max(toDouble(current.sup()), last + stride)));
+                }
+            } else {
+                if (Double.isInfinite(limit[0])) {
+                    range.setInf(infinity(-1));
+                } else if (current.inf().isInfty() == 0) {
+                    double last = limit[0] + (op.equals(">") ? 1 : 0);
+                    range.setInf(new DoubleScalar(Math.min(toDouble(current.inf()), last + stride)));
+                }
+            }
+
+            if (range.isEqual(current))
+                return elem;
+
+            Linexpr1 expr = new Linexpr1(elem.getEnvironment());
+            expr.setCst(range);
+            return elem.assignCopy(man, var.getName(), expr, null);
+        }
+
+        // Interval arithmetic over the bound, as {inf, sup} with infinities.
+        private double[] evaluate(Value v, Manager man, Abstract1 elem) throws ApronException {
+            if (v instanceof IntConstant) {
+                double c = ((IntConstant) v).value;
+                return new double[]{c, c};
+            }
+            if (v instanceof Local) {
+                if (temps.containsKey(v))
+                    return evaluate(temps.get(v), man, elem);
+                Interval i = elem.getBound(man, ((Local) v).getName());
+                return new double[]{toDouble(i.inf()), toDouble(i.sup())};
+            }
+            BinopExpr e = (BinopExpr) v;
+            if (v instanceof JMulExpr) {
+                // One side is a constant, see isLinear.
+                boolean constantLeft = e.getOp1() instanceof IntConstant;
+                double c = ((IntConstant) (constantLeft ? e.getOp1() : e.getOp2())).value;
+                double[] x = evaluate(constantLeft ? e.getOp2() : e.getOp1(), man, elem);
+                if (c == 0)
+                    return new double[]{0, 0};
+                return (c > 0) ? new double[]{c * x[0], c * x[1]} : new double[]{c * x[1], c * x[0]};
+            }
+            double[] l = evaluate(e.getOp1(), man, elem);
+            double[] r = evaluate(e.getOp2(), man, elem);
+            if (v instanceof JAddExpr)
+                return new double[]{l[0] + r[0], l[1] + r[1]};
+            return new double[]{l[0] - r[1], l[1] - r[0]};
+        }
+
+        private static double toDouble(Scalar scalar) {
+            if (scalar.isInfty() != 0)
+                return scalar.isInfty() * Double.POSITIVE_INFINITY;
+            double[] temp = new double[1];
+            scalar.toDouble(temp, 0);
+            return temp[0];
+        }
+
+        private static Scalar infinity(int sign) {
+            Scalar s = new DoubleScalar();
+            s.setInfty(sign);
+            return s;
+        }
+    }
+}
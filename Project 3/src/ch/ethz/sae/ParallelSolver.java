@@ -0,0 +1,450 @@
+package ch.ethz.sae;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import apron.ApronException;
+import soot.Unit;
+import soot.UnitBox;
+import soot.toolkits.graph.UnitGraph;
+import soot.util.Chain;
+
+// Solves the fixpoint of an Analysis on several threads.
+// The unit graph is split into its strongly connected components, which
+// are the outermost loops (javac only produces reducible graphs, so the
+// loop nest and the components coincide) and the single units between
+// them. A component's input is stable once all components leading into it
+// are solved, so the components form a DAG that we walk in parallel:
+// sibling loops behind different branches are solved at the same time,
+// each on its own thread with its own Apron manager and environment, and
+// joined again at the unit where the branches meet. A single unit that
+// leads into only one component is solved together with it, so that the
+// straight-line code between loops does not become a task of its own.
+// The states that flow in from a task run in another environment are
+// rebuilt in the environment of the thread that reads them, so no native
+// object is shared between threads while they work.
+// The transfer functions, joins and widening are exactly those of
+// Analysis. Only the order in which the units are visited differs from
+// doAnalysis, which can change how precise the widened loop heads are.
+// Errors are handled as in doAnalysis: a component whose solving throws an
+// exception is reported and set to top, and only an Error is passed on.
+public class ParallelSolver {
+
+    private static ForkJoinPool pool = new ForkJoinPool();
+
+    private Analysis analysis;
+    private UnitGraph g;
+    private Chain<Unit> chain;
+
+    private List<Unit> units = new ArrayList<Unit>();
+    private HashMap<Unit, Integer> index = new HashMap<Unit, Integer>();
+    private int[] component; // component of each unit
+    private List<List<Integer>> members = new ArrayList<List<Integer>>(); // units of each component, in body order
+    private int[] group; // group of each component
+    private List<List<Integer>> groups = new ArrayList<List<Integer>>(); // components of each group, in solving order
+    private List<LinkedHashSet<Integer>> successors = new ArrayList<LinkedHashSet<Integer>>(); // successor groups
+    private AtomicInteger[] pending; // number of unsolved predecessor groups
+    private StateTable[] producer; // state table of the task that solved each group
+
+    // The outputs of each unit, as flowThrough left them.
+    private AWrapper[] fallOut;
+    private AWrapper[][] branchOut;
+
+    private CountDownLatch done;
+    private volatile Error failure;
+
+    public ParallelSolver(Analysis analysis) {
+        this.analysis = analysis;
+        this.g = analysis.g;
+        this.chain = g.getBody().getUnits();
+
+        for (Unit u : g) {
+            index.put(u, units.size());
+            units.add(u);
+        }
+        fallOut = new AWrapper[units.size()];
+        branchOut = new AWrapper[units.size()][];
+
+        findComponents();
+        linkComponents();
+    }
+
+    public void solve() {
+        done = new CountDownLatch(groups.size());
+        for (int k = 0; k < groups.size(); k++) {
+            if (pending[k].get() == 0)
+                pool.execute(new Task(k));
+        }
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while solving " + g.getBody().getMethod(), e);
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    // Solves a group and then whichever successors it makes ready. One of
+    // them is continued on this thread, in the same environment, and the
+    // others are handed to the pool.
+    private class Task implements Runnable {
+        int k;
+
+        Task(int k) {
+            this.k = k;
+        }
+
+        public void run() {
+            boolean ready = true;
+            try {
+                analysis.enterWorker();
+            } catch (ApronException e) {
+                e.printStackTrace();
+                ready = false;
+            }
+            try {
+                while (k >= 0) {
+                    // Keep releasing the successors whatever happens, so
+                    // that solve() does not hang.
+                    try {
+                        solveGroup(k, ready);
+                    } catch (Error e) {
+                        failure = e;
+                    }
+                    producer[k] = analysis.states();
+                    int next = -1;
+                    for (int s : successors.get(k)) {
+                        if (pending[s].decrementAndGet() == 0) {
+                            if (next < 0)
+                                next = s;
+                            else
+                                pool.execute(new Task(s));
+                        }
+                    }
+                    done.countDown();
+                    k = next;
+                }
+            } finally {
+                analysis.leaveWorker();
+            }
+        }
+    }
+
+    // Solves the components of a group in order. As in doAnalysis, one
+    // that throws an exception is reported and set to top.
+    private void solveGroup(int k, boolean ready) {
+        // The inputs from other tasks, in this thread's environment.
+        IdentityHashMap<AWrapper, AWrapper> adopted = new IdentityHashMap<AWrapper, AWrapper>();
+        for (int c : groups.get(k)) {
+            try {
+                if (ready) {
+                    solveComponent(c, adopted);
+                } else {
+                    giveUp(c);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                giveUp(c);
+            }
+        }
+        try {
+            publish(k);
+        } catch (ApronException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void solveComponent(int c, IdentityHashMap<AWrapper, AWrapper> adopted) throws ApronException {
+        List<Integer> unitsOf = members.get(c);
+        if (isSingleUnit(c)) {
+            flowUnit(unitsOf.get(0), adopted);
+        } else {
+            // A loop: iterate in body order until none of its outputs change.
+            for (int u : unitsOf) {
+                fallOut[u] = analysis.newInitialFlow();
+                branchOut[u] = new AWrapper[units.get(u).getUnitBoxes().size()];
+                for (int i = 0; i < branchOut[u].length; i++)
+                    branchOut[u][i] = analysis.newInitialFlow();
+            }
+            TreeSet<Integer> worklist = new TreeSet<Integer>(unitsOf);
+            while (!worklist.isEmpty()) {
+                int u = worklist.pollFirst();
+                AWrapper oldFall = fallOut[u];
+                AWrapper[] oldBranch = branchOut[u];
+                flowUnit(u, adopted);
+                if (changed(oldFall, fallOut[u]) || changed(oldBranch, branchOut[u])) {
+                    for (Unit succ : g.getSuccsOf(units.get(u))) {
+                        int s = index.get(succ);
+                        if (component[s] == c)
+                            worklist.add(s);
+                    }
+                }
+            }
+        }
+    }
+
+    // Like flowThrough does for a single unit, a component that could not
+    // be solved is set to top rather than left at bottom, which would make
+    // everything after it look unreachable.
+    private void giveUp(int c) {
+        for (int u : members.get(c)) {
+            Unit unit = units.get(u);
+            analysis.setFlowBefore(unit, top());
+            fallOut[u] = top();
+            branchOut[u] = new AWrapper[unit.getUnitBoxes().size()];
+            for (int i = 0; i < branchOut[u].length; i++)
+                branchOut[u][i] = top();
+        }
+    }
+
+    private AWrapper top() {
+        AWrapper w = analysis.entryInitialFlow();
+        w.man = analysis.man();
+        return w;
+    }
+
+    // Other threads are going to read the outputs that leave the group.
+    // Bring them into canonical form now, so that reading them does not
+    // make Apron normalise them in place concurrently.
+    private void publish(int k) throws ApronException {
+        for (int c : groups.get(k)) {
+            for (int u : members.get(c)) {
+                if (!leavesGroup(u))
+                    continue;
+                canonicalize(fallOut[u]);
+                for (AWrapper w : branchOut[u])
+                    canonicalize(w);
+            }
+        }
+    }
+
+    private boolean leavesGroup(int u) {
+        for (Unit succ : g.getSuccsOf(units.get(u))) {
+            if (group[component[index.get(succ)]] != group[component[u]])
+                return true;
+        }
+        return false;
+    }
+
+    // The canonical bottom of a thread is created in canonical form.
+    private void canonicalize(AWrapper w) throws ApronException {
+        if (!analysis.isBottom(w.get()))
+            w.get().canonicalize(analysis.man());
+    }
+
+    private boolean changed(AWrapper before, AWrapper after) {
+        after.man = analysis.man();
+        return !after.equals(before);
+    }
+
+    private boolean changed(AWrapper[] before, AWrapper[] after) {
+        for (int i = 0; i < after.length; i++) {
+            if (changed(before[i], after[i]))
+                return true;
+        }
+        return false;
+    }
+
+    private boolean isSingleUnit(int c) {
+        return members.get(c).size() == 1 && !isSelfLoop(members.get(c).get(0));
+    }
+
+    private boolean isSelfLoop(int u) {
+        return g.getSuccsOf(units.get(u)).contains(units.get(u));
+    }
+
+    // Merges the inputs of the unit, records them as its fixpoint, and
+    // computes its outputs. Like doAnalysis, the units that the graph
+    // starts with also receive the entry flow.
+    private void flowUnit(int u, IdentityHashMap<AWrapper, AWrapper> adopted) throws ApronException {
+        Unit unit = units.get(u);
+        List<AWrapper> inputs = new ArrayList<AWrapper>();
+        if (g.getHeads().contains(unit))
+            inputs.add(analysis.entryInitialFlow());
+        for (Unit pred : g.getPredsOf(unit)) {
+            int p = index.get(pred);
+            for (AWrapper output : outputsTo(p, unit)) {
+                if (isForeign(p, u))
+                    output = adopt(output, adopted);
+                inputs.add(output);
+            }
+        }
+
+        AWrapper before;
+        if (inputs.isEmpty()) {
+            before = analysis.newInitialFlow();
+        } else {
+            before = new AWrapper(inputs.get(0).get());
+            for (int i = 1; i < inputs.size(); i++) {
+                AWrapper merged = analysis.newInitialFlow();
+                analysis.merge(unit, before, inputs.get(i), merged);
+                before = merged;
+            }
+        }
+        before.man = analysis.man();
+        analysis.setFlowBefore(unit, before);
+
+        List<AWrapper> fall = new ArrayList<AWrapper>();
+        fall.add(analysis.newInitialFlow());
+        List<AWrapper> branch = new ArrayList<AWrapper>();
+        for (int i = 0; i < unit.getUnitBoxes().size(); i++)
+            branch.add(analysis.newInitialFlow());
+        analysis.flowThrough(before, unit, fall, branch);
+
+        fallOut[u] = fall.get(0);
+        branchOut[u] = branch.toArray(new AWrapper[branch.size()]);
+    }
+
+    // Whether the outputs of p, which lead into u, were computed in another
+    // environment than the current one. Those of an earlier group that was
+    // solved by this task were not.
+    private boolean isForeign(int p, int u) {
+        int k = group[component[p]];
+        return k != group[component[u]] && producer[k] != analysis.states();
+    }
+
+    // Each input from another task is only rebuilt once, however often the
+    // loop it enters is iterated.
+    private AWrapper adopt(AWrapper output, IdentityHashMap<AWrapper, AWrapper> adopted) throws ApronException {
+        AWrapper local = adopted.get(output);
+        if (local == null) {
+            local = new AWrapper(analysis.adopt(output.get()));
+            local.man = analysis.man();
+            adopted.put(output, local);
+        }
+        return local;
+    }
+
+    // The outputs of pred that flow into unit: the fall flow if unit is the
+    // next unit, and the branch flow of every box that targets unit.
+    private List<AWrapper> outputsTo(int pred, Unit unit) {
+        List<AWrapper> outputs = new ArrayList<AWrapper>();
+        Unit p = units.get(pred);
+        if (p.fallsThrough() && chain.getSuccOf(p) == unit)
+            outputs.add(fallOut[pred]);
+        List<UnitBox> boxes = p.getUnitBoxes();
+        for (int i = 0; i < boxes.size(); i++) {
+            if (boxes.get(i).getUnit() == unit)
+                outputs.add(branchOut[pred][i]);
+        }
+        return outputs;
+    }
+
+    // Tarjan's algorithm, iteratively, as large methods would overflow the
+    // stack otherwise. Components are numbered in reverse topological order,
+    // which groupComponents relies on.
+    private void findComponents() {
+        int n = units.size();
+        component = new int[n];
+        int[] low = new int[n];
+        int[] order = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(order, -1);
+        int[] stack = new int[n];
+        int top = 0;
+        int[] callStack = new int[n];
+        int[] nextSucc = new int[n];
+        int counter = 0;
+
+        for (int root = 0; root < n; root++) {
+            if (order[root] >= 0)
+                continue;
+            int depth = 0;
+            callStack[depth] = root;
+            order[root] = low[root] = counter++;
+            stack[top++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int v = callStack[depth];
+                List<Unit> succs = g.getSuccsOf(units.get(v));
+                if (nextSucc[v] < succs.size()) {
+                    int w = index.get(succs.get(nextSucc[v]++));
+                    if (order[w] < 0) {
+                        order[w] = low[w] = counter++;
+                        stack[top++] = w;
+                        onStack[w] = true;
+                        callStack[++depth] = w;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], order[w]);
+                    }
+                } else {
+                    if (low[v] == order[v]) {
+                        List<Integer> unitsOf = new ArrayList<Integer>();
+                        int w;
+                        do {
+                            w = stack[--top];
+                            onStack[w] = false;
+                            component[w] = members.size();
+                            unitsOf.add(w);
+                        } while (w != v);
+                        Collections.sort(unitsOf);
+                        members.add(unitsOf);
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = callStack[depth];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+        }
+    }
+
+    private void linkComponents() {
+        List<LinkedHashSet<Integer>> next = new ArrayList<LinkedHashSet<Integer>>();
+        for (int c = 0; c < members.size(); c++)
+            next.add(new LinkedHashSet<Integer>());
+        for (int u = 0; u < units.size(); u++) {
+            for (Unit succ : g.getSuccsOf(units.get(u))) {
+                int to = component[index.get(succ)];
+                if (component[u] != to)
+                    next.get(component[u]).add(to);
+            }
+        }
+        groupComponents(next);
+
+        pending = new AtomicInteger[groups.size()];
+        producer = new StateTable[groups.size()];
+        for (int k = 0; k < groups.size(); k++) {
+            successors.add(new LinkedHashSet<Integer>());
+            pending[k] = new AtomicInteger();
+        }
+        for (int c = 0; c < members.size(); c++) {
+            for (int s : next.get(c)) {
+                int from = group[c];
+                int to = group[s];
+                if (from != to && successors.get(from).add(to))
+                    pending[to].incrementAndGet();
+            }
+        }
+    }
+
+    // Puts a single unit with only one successor component into the group
+    // of that successor, and every other component into a group of its own.
+    // The successor's number is lower, so its group is known by then, and
+    // adding each component in front keeps the groups in topological order.
+    private void groupComponents(List<LinkedHashSet<Integer>> next) {
+        group = new int[members.size()];
+        for (int c = 0; c < members.size(); c++) {
+            if (isSingleUnit(c) && next.get(c).size() == 1) {
+                group[c] = group[next.get(c).iterator().next()];
+                groups.get(group[c]).add(0, c);
+            } else {
+                group[c] = groups.size();
+                groups.add(new ArrayList<Integer>());
+                groups.get(group[c]).add(c);
+            }
+        }
+    }
+}
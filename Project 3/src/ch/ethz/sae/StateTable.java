@@ -0,0 +1,69 @@
+package ch.ethz.sae;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import apron.Abstract1;
+import apron.ApronException;
+import apron.Manager;
+
+// Hash-consing table for abstract elements.
+// Equal elements are mapped to a single canonical instance, so that later
+// lookups (such as the transfer memo in Analysis) can compare by identity
+// instead of going through the native comparison every time.
+public class StateTable {
+
+    private Manager man;
+    private HashMap<Key, Abstract1> table = new HashMap<Key, Abstract1>();
+    private IdentityHashMap<Abstract1, Boolean> canonical = new IdentityHashMap<Abstract1, Boolean>();
+
+    public StateTable(Manager man) {
+        this.man = man;
+    }
+
+    // Returns the canonical instance equal to elem, registering elem as
+    // canonical if no equal element has been seen before.
+    public Abstract1 intern(Abstract1 elem) throws ApronException {
+        if (canonical.containsKey(elem))
+            return elem;
+
+        Key key = new Key(elem);
+        Abstract1 existing = table.get(key);
+        if (existing != null)
+            return existing;
+
+        table.put(key, elem);
+        canonical.put(elem, Boolean.TRUE);
+        return elem;
+    }
+
+    // Wraps an element with its native hash and equality so it can be used
+    // in a HashMap. The hash is computed once, as it is not cheap.
+    private class Key {
+        Abstract1 elem;
+        int hash;
+
+        Key(Abstract1 e) throws ApronException {
+            elem = e;
+            hash = e.hashCode(man);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            if (hash != k.hash)
+                return false;
+            try {
+                return elem.isEqual(man, k.elem);
+            } catch (ApronException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+}
@@ -37,12 +37,21 @@ public class Verifier {
             System.exit(-1);
         }
         String analyzedClass = args[0];
+        int[] flags = verify(analyzedClass);
+        printResult(analyzedClass, flags[0], flags[1]);
+    }
+
+    // Verifies all methods of the class and returns the WELD_AT and
+    // WELD_BETWEEN flags, in that order. Soot's global state has to be
+    // fresh, so a JVM verifying several classes has to G.reset() between them.
+    static int[] verify(String analyzedClass) {
         SootClass c = loadClass(analyzedClass);
 
         PAG pointsToAnalysis = doPointsToAnalysis(c);
 
         int weldAtFlag = 1;
         int weldBetweenFlag = 1;
+        Events.Acceleration acceleration = new Events.Acceleration();
 
         for (SootMethod method : c.getMethods()) {
 
@@ -52,6 +61,8 @@ public class Verifier {
             }
             Analysis analysis = new Analysis(new BriefUnitGraph(method.retrieveActiveBody()), c);
             analysis.run();
+            acceleration.loops += analysis.loopCount();
+            acceleration.accelerated += analysis.acceleratedLoopCount();
             
             if (!verifyWeldAt(method, analysis, pointsToAnalysis)) {
                 weldAtFlag = 0;
@@ -61,6 +72,14 @@ public class Verifier {
             }
         }
         
+        acceleration.className = analyzedClass;
+        acceleration.rate = (acceleration.loops == 0)? 0.0 : (double)acceleration.accelerated / acceleration.loops;
+        acceleration.commit();
+
+        return new int[]{weldAtFlag, weldBetweenFlag};
+    }
+
+    static void printResult(String analyzedClass, int weldAtFlag, int weldBetweenFlag) {
         // Do not change the output format
         if (weldAtFlag == 1) {
             System.out.println(analyzedClass + " WELD_AT_OK");
@@ -94,6 +113,14 @@ public class Verifier {
                 InvokeExpr expr = ((JInvokeStmt)unit).getInvokeExpr();
                 Value receiver = ((ValueBox)expr.getUseBoxes().get(0)).getValue();
                 if(expr.getMethod().getName().equals("weldBetween")){
+                    Events.WeldCheck event = new Events.WeldCheck();
+                    event.begin();
+                    if(fixPoint.isUnreachable(unit)){
+                        // Calls in dead code never weld, so there is nothing to look up.
+                        commitWeldCheck(event, method, "weldBetween", unit, true);
+                        continue;
+                    }
+                    boolean ok = true;
                     try{
                         // Figure out the argument range to the invocation.
                         Interval leftPoint = fixPoint.coerceInterval(expr.getArg(0), fixPoint.getFlowBefore(unit).elem);
@@ -103,15 +130,21 @@ public class Verifier {
                         
                         // Test all possible constructors. If one of them fails, we are pessimistic and fail too.
                         for(List args : allConstructorArgsForVar((Local)receiver, fixPoint, pointsTo)){
+                            ++event.allocationSites;
                             int left = ((IntConstant)args.get(0)).value;
                             int right = ((IntConstant)args.get(1)).value;
                             if(!weldRange.isBottom() && !fixPoint.intervalContained(weldRange, new Interval(left, right))){
-                                return false;
+                                ok = false;
+                                break;
                             }
                         }
                     }catch(Exception ex){
                         ex.printStackTrace();
                     }
+                    commitWeldCheck(event, method, "weldBetween", unit, ok);
+                    if(!ok){
+                        return false;
+                    }
                 }
             }
 
@@ -127,32 +160,63 @@ public class Verifier {
                 Value receiver = ((ValueBox)expr.getUseBoxes().get(0)).getValue();
                 
                 if(expr.getMethod().getName().equals("weldAt")){
+                    Events.WeldCheck event = new Events.WeldCheck();
+                    event.begin();
+                    if(fixPoint.isUnreachable(unit)){
+                        // Calls in dead code never weld, so there is nothing to look up.
+                        commitWeldCheck(event, method, "weldAt", unit, true);
+                        continue;
+                    }
+                    boolean ok = true;
                     try{
                         Interval weldPoint = fixPoint.coerceInterval(expr.getArg(0), fixPoint.getFlowBefore(unit).elem);
                         for(List args : allConstructorArgsForVar((Local)receiver, fixPoint, pointsTo)){
+                            ++event.allocationSites;
                             int left = ((IntConstant)args.get(0)).value;
                             int right = ((IntConstant)args.get(1)).value;
                             if(!weldPoint.isBottom() && !fixPoint.intervalsOverlapping(weldPoint, new Interval(left, right))){
-                                return false;
+                                ok = false;
+                                break;
                             }
                         }
                     }catch(Exception ex){
                         ex.printStackTrace();
                     }
+                    commitWeldCheck(event, method, "weldAt", unit, ok);
+                    if(!ok){
+                        return false;
+                    }
                 }
             }
         }
         return true;
     }
 
+    private static void commitWeldCheck(Events.WeldCheck event, SootMethod method, String kind, Unit unit, boolean ok) {
+        if (event.shouldCommit()) {
+            event.className = method.getDeclaringClass().getName();
+            event.methodName = method.getName();
+            event.kind = kind;
+            event.callSite = unit.toString();
+            event.ok = ok;
+            event.commit();
+        }
+    }
+
     private static SootClass loadClass(String name) {
+        Events.LoadClass event = new Events.LoadClass();
+        event.begin();
         SootClass c = Scene.v().loadClassAndSupport(name);
         c.setApplicationClass();
+        event.className = name;
+        event.commit();
         return c;
     }
 
     // Performs Points-To Analysis
     private static PAG doPointsToAnalysis(SootClass c) {
+        Events.PointsTo event = new Events.PointsTo();
+        event.begin();
         Scene.v().setEntryPoints(c.getMethods());
 
         HashMap<String, String> options = new HashMap<String, String>();
@@ -168,6 +232,9 @@ public class Verifier {
         SparkTransformer.v().transform("", options);
         PAG pag = (PAG) Scene.v().getPointsToAnalysis();
 
+        event.className = c.getName();
+        event.entryPoints = c.getMethods().size();
+        event.commit();
         return pag;
     }
 